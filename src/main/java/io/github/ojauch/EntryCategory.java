@@ -0,0 +1,59 @@
+package io.github.ojauch;
+
+/**
+ * Role of a zip entry inside a WACZ archive, derived from its path
+ */
+enum EntryCategory {
+    /** WARC file below archive/ */
+    ARCHIVE,
+    /** CDX index below indexes/ */
+    INDEX,
+    /** jsonl page list below pages/ */
+    PAGES,
+    /** datapackage.json or datapackage-digest.json */
+    METADATA,
+    /** any other entry */
+    OTHER;
+
+    private static final String ARCHIVE_PREFIX = "archive/";
+    private static final String INDEX_PREFIX = "indexes/";
+    private static final String PAGES_PREFIX = "pages/";
+
+    /**
+     * Classify an entry path using plain prefix and suffix checks.
+     *
+     * <p>Equivalent to matching {@code archive/.+\.warc(\.gz)?} and {@code indexes/.+\.cdx(\.gz)?}, but without
+     * running a regex per entry.</p>
+     *
+     * @param path path of the entry inside the zip archive
+     * @return category of the entry
+     */
+    static EntryCategory of(String path) {
+        if (path.startsWith(ARCHIVE_PREFIX)) {
+            return hasSuffix(path, ARCHIVE_PREFIX.length(), ".warc", ".warc.gz") ? ARCHIVE : OTHER;
+        }
+        if (path.startsWith(INDEX_PREFIX)) {
+            return hasSuffix(path, INDEX_PREFIX.length(), ".cdx", ".cdx.gz") ? INDEX : OTHER;
+        }
+        if (path.startsWith(PAGES_PREFIX)) {
+            return hasSuffix(path, PAGES_PREFIX.length(), ".jsonl") ? PAGES : OTHER;
+        }
+        if (path.equals("datapackage.json") || path.equals("datapackage-digest.json")) {
+            return METADATA;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Check that the path ends with one of the suffixes and that at least one character is left between prefix and
+     * suffix.
+     */
+    private static boolean hasSuffix(String path, int prefixLength, String... suffixes) {
+        for (String suffix : suffixes) {
+            if (path.length() > prefixLength + suffix.length() && path.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
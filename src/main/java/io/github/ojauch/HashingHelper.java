@@ -10,6 +10,8 @@ import java.security.NoSuchAlgorithmException;
 
 public class HashingHelper {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * Get hash value and algorithm from datapackage hash string
      *
@@ -47,8 +49,9 @@ public class HashingHelper {
             throws NoSuchAlgorithmException, IOException {
         MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
 
+        byte[] buffer = new byte[BUFFER_SIZE];
         try (DigestInputStream dis = new DigestInputStream(is, messageDigest)) {
-            while (dis.read() != -1) {
+            while (dis.read(buffer) != -1) {
             }
         }
         byte[] digest = messageDigest.digest();
@@ -4,7 +4,7 @@ public class Resource {
     private String name;
     private String path;
     private String hash;
-    private int bytes;
+    private Long bytes;
 
     public String getName() {
         return name;
@@ -30,11 +30,11 @@ public class Resource {
         this.hash = hash;
     }
 
-    public int getBytes() {
+    public Long getBytes() {
         return bytes;
     }
 
-    public void setBytes(int bytes) {
+    public void setBytes(Long bytes) {
         this.bytes = bytes;
     }
 }
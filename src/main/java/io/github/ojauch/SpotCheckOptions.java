@@ -0,0 +1,100 @@
+package io.github.ojauch;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Options for {@link WaczArchive#spotCheck(SpotCheckOptions)}
+ *
+ * @param sampleSize number of resources whose checksum is fully calculated
+ * @param sampling how the resources for the full checksum verification are selected
+ * @param seed seed of the random generator used for sampling
+ * @param crcSizeLimit entries up to this uncompressed size get their zip CRC verified
+ * @param byteBudget maximum number of uncompressed bytes to read
+ * @param timeBudget maximum duration of the check including opening the archive, unlimited if empty
+ * @param failureTolerance share of corrupted resources the confidence of the result refers to
+ */
+public record SpotCheckOptions(
+        int sampleSize,
+        Sampling sampling,
+        long seed,
+        long crcSizeLimit,
+        long byteBudget,
+        Optional<Duration> timeBudget,
+        double failureTolerance) {
+
+    public SpotCheckOptions {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("sampleSize must not be negative");
+        }
+        Objects.requireNonNull(sampling, "sampling must not be null");
+        if (crcSizeLimit < 0) {
+            throw new IllegalArgumentException("crcSizeLimit must not be negative");
+        }
+        if (byteBudget < 0) {
+            throw new IllegalArgumentException("byteBudget must not be negative");
+        }
+        Objects.requireNonNull(timeBudget, "timeBudget must not be null, use Optional.empty() for no limit");
+        if (!(failureTolerance > 0 && failureTolerance < 1)) {
+            throw new IllegalArgumentException("failureTolerance must be between 0 and 1");
+        }
+    }
+
+    public enum Sampling {
+        /** Select resources uniformly at random */
+        RANDOM,
+        /**
+         * Select resources from every entry category (archives, indexes, pages, metadata) in turn. The confidence of
+         * the result is limited by the category with the lowest share of verified resources.
+         */
+        STRATIFIED
+    }
+
+    /**
+     * Builder with defaults for all options, the values are validated by {@link #build()}
+     */
+    public static class Builder {
+
+        private int sampleSize = 16;
+        private Sampling sampling = Sampling.STRATIFIED;
+        private long seed = System.nanoTime();
+        private long crcSizeLimit = 1024 * 1024;
+        private long byteBudget = Long.MAX_VALUE;
+        private Duration timeBudget = null;
+        private double failureTolerance = 0.05;
+
+        public SpotCheckOptions build() {
+            return new SpotCheckOptions(sampleSize, sampling, seed, crcSizeLimit, byteBudget,
+                    Optional.ofNullable(timeBudget), failureTolerance);
+        }
+
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        public void setSampling(Sampling sampling) {
+            this.sampling = sampling;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        public void setCrcSizeLimit(long crcSizeLimit) {
+            this.crcSizeLimit = crcSizeLimit;
+        }
+
+        public void setByteBudget(long byteBudget) {
+            this.byteBudget = byteBudget;
+        }
+
+        public void setTimeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+
+        public void setFailureTolerance(double failureTolerance) {
+            this.failureTolerance = failureTolerance;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.ojauch;
+
+import java.util.Map;
+
+/**
+ * Result of {@link WaczArchive#spotCheck(SpotCheckOptions)}
+ *
+ * @param statuses status of every checked file with the file paths as keys
+ * @param sampledCount number of resources selected for full checksum verification
+ * @param verifiedCount number of selected resources whose checksum was calculated within the budget
+ * @param bytesRead number of uncompressed bytes read for CRC and checksum verification
+ * @param budgetExhausted true if checks were skipped because the byte or time budget was used up
+ * @param confidence lower bound of the confidence that less than the configured failure tolerance of the resources
+ *      with a checksum is corrupted, 0 if a failure was found. Valid for both sampling modes: stratified sampling
+ *      is rated by the category with the lowest share of verified resources, so a category without any verified
+ *      resource gives 0. A category in which a sampled resource was skipped because of the byte or time budget
+ *      gives 0 too, with random sampling this applies to all resources.
+ */
+public record SpotCheckResult(
+        Map<String, Status> statuses,
+        int sampledCount,
+        int verifiedCount,
+        long bytesRead,
+        boolean budgetExhausted,
+        double confidence) {
+
+    public enum Status {
+        /** Entry exists and its declared size matches, its data was not read */
+        OK,
+        /** Entry exists, its declared size and the zip CRC of its data match */
+        CRC_VERIFIED,
+        /** Checksum was fully calculated and matches */
+        VERIFIED,
+        /** Entry does not exist in the archive */
+        MISSING,
+        /** Declared size does not match the entry size */
+        SIZE_MISMATCH,
+        /** Entry data does not match the CRC of the zip archive */
+        CRC_MISMATCH,
+        /** Checksum does not match the declared hash */
+        CHECKSUM_MISMATCH;
+
+        public boolean isFailure() {
+            return this != OK && this != CRC_VERIFIED && this != VERIFIED;
+        }
+    }
+
+    /**
+     * Check whether no failure was found. Resources that were not fully verified may still be corrupted.
+     *
+     * @return true if no check failed
+     */
+    public boolean isValid() {
+        return statuses.values().stream().noneMatch(Status::isFailure);
+    }
+}
@@ -0,0 +1,253 @@
+package io.github.ojauch;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Probabilistic verification of a WACZ archive within a byte and time budget.
+ *
+ * <p>Existence and declared size are checked for every resource using the zip index only. The declared checksum is
+ * calculated for a sample of the resources first, the budget left over is used to verify the zip CRC of the other
+ * entries up to {@link SpotCheckOptions#crcSizeLimit()}. Checks that don't fit into the remaining budget are
+ * skipped.</p>
+ */
+final class SpotChecker {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WaczReader reader;
+    private final SpotCheckOptions options;
+    private final long startTime;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private long bytesRead = 0;
+    private boolean budgetExhausted = false;
+
+    /**
+     * @param startTime {@link System#nanoTime()} at which the time budget started
+     */
+    SpotChecker(WaczReader reader, SpotCheckOptions options, long startTime) {
+        this.reader = reader;
+        this.options = options;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Run the spot check
+     *
+     * @param resources resources declared in the datapackage
+     * @param expectedHashValues declared hash values with the file paths as keys
+     * @return result of the spot check
+     * @throws IOException if an entry wasn't readable
+     * @throws NoSuchAlgorithmException if a hashing algo is not supported by the java platform
+     */
+    SpotCheckResult check(List<Resource> resources, Map<String, HashValue> expectedHashValues)
+            throws IOException, NoSuchAlgorithmException {
+        ZipIndex index = reader.getIndex();
+        Map<String, SpotCheckResult.Status> statuses = new LinkedHashMap<>();
+
+        for (Resource resource : resources) {
+            ZipIndexEntry entry = index.getEntry(resource.getPath());
+            if (entry == null) {
+                statuses.put(resource.getPath(), SpotCheckResult.Status.MISSING);
+            } else if (resource.getBytes() != null && resource.getBytes() != entry.size()) {
+                statuses.put(resource.getPath(), SpotCheckResult.Status.SIZE_MISMATCH);
+            } else {
+                statuses.put(resource.getPath(), SpotCheckResult.Status.OK);
+            }
+        }
+        for (String path : expectedHashValues.keySet()) {
+            if (!statuses.containsKey(path)) {
+                statuses.put(path, index.getEntry(path) == null
+                        ? SpotCheckResult.Status.MISSING : SpotCheckResult.Status.OK);
+            }
+        }
+
+        List<ZipIndexEntry> candidates = new ArrayList<>();
+        for (String path : expectedHashValues.keySet()) {
+            if (statuses.get(path) == SpotCheckResult.Status.OK) {
+                candidates.add(index.getEntry(path));
+            }
+        }
+        List<ZipIndexEntry> sample = sample(candidates);
+        Set<String> sampledPaths = new HashSet<>();
+        for (ZipIndexEntry entry : sample) {
+            sampledPaths.add(entry.path());
+        }
+
+        int verifiedCount = 0;
+        Set<String> verifiedPaths = new HashSet<>();
+        Set<String> skippedPaths = new HashSet<>();
+        for (ZipIndexEntry entry : sample) {
+            if (!fitsBudget(entry)) {
+                skippedPaths.add(entry.path());
+                continue;
+            }
+
+            HashValue hashValue = expectedHashValues.get(entry.path());
+            MessageDigest messageDigest = MessageDigest.getInstance(hashValue.getAlgorithm());
+            CRC32 crc = entry.size() <= options.crcSizeLimit() ? new CRC32() : null;
+            if (!read(entry, messageDigest, crc)) {
+                skippedPaths.add(entry.path());
+                continue;
+            }
+
+            verifiedCount++;
+            verifiedPaths.add(entry.path());
+            if (crc != null && crc.getValue() != entry.crc()) {
+                statuses.put(entry.path(), SpotCheckResult.Status.CRC_MISMATCH);
+            } else if (!Hex.encodeHexString(messageDigest.digest()).equals(hashValue.getValue())) {
+                statuses.put(entry.path(), SpotCheckResult.Status.CHECKSUM_MISMATCH);
+            } else {
+                statuses.put(entry.path(), SpotCheckResult.Status.VERIFIED);
+            }
+        }
+
+        // the CRC of the remaining small entries is only checked with the budget left over by the sample, sampled
+        // entries already had their CRC checked while the checksum was calculated
+        for (Map.Entry<String, SpotCheckResult.Status> status : statuses.entrySet()) {
+            if (status.getValue() != SpotCheckResult.Status.OK || sampledPaths.contains(status.getKey())) {
+                continue;
+            }
+            ZipIndexEntry entry = index.getEntry(status.getKey());
+            if (entry.size() > options.crcSizeLimit() || !fitsBudget(entry)) {
+                continue;
+            }
+
+            CRC32 crc = new CRC32();
+            if (read(entry, null, crc)) {
+                status.setValue(crc.getValue() == entry.crc()
+                        ? SpotCheckResult.Status.CRC_VERIFIED : SpotCheckResult.Status.CRC_MISMATCH);
+            }
+        }
+
+        boolean failed = statuses.values().stream().anyMatch(SpotCheckResult.Status::isFailure);
+        return new SpotCheckResult(Collections.unmodifiableMap(statuses), sample.size(), verifiedCount, bytesRead,
+                budgetExhausted, failed ? 0 : getConfidence(candidates, verifiedPaths, skippedPaths));
+    }
+
+    /**
+     * Select the resources for full checksum verification
+     */
+    private List<ZipIndexEntry> sample(List<ZipIndexEntry> candidates) {
+        Random random = new Random(options.seed());
+        int sampleSize = Math.min(options.sampleSize(), candidates.size());
+
+        if (options.sampling() == SpotCheckOptions.Sampling.RANDOM) {
+            List<ZipIndexEntry> shuffled = new ArrayList<>(candidates);
+            Collections.shuffle(shuffled, random);
+            return shuffled.subList(0, sampleSize);
+        }
+
+        // take one entry of every category in turn, so small categories are covered even with a small sample
+        Map<EntryCategory, Deque<ZipIndexEntry>> strata = new EnumMap<>(EntryCategory.class);
+        for (ZipIndexEntry candidate : candidates) {
+            strata.computeIfAbsent(candidate.category(), category -> new ArrayDeque<>()).add(candidate);
+        }
+        List<Deque<ZipIndexEntry>> shuffledStrata = new ArrayList<>();
+        for (Deque<ZipIndexEntry> stratum : strata.values()) {
+            List<ZipIndexEntry> shuffled = new ArrayList<>(stratum);
+            Collections.shuffle(shuffled, random);
+            shuffledStrata.add(new ArrayDeque<>(shuffled));
+        }
+
+        List<ZipIndexEntry> sample = new ArrayList<>();
+        while (sample.size() < sampleSize) {
+            for (Deque<ZipIndexEntry> stratum : shuffledStrata) {
+                if (!stratum.isEmpty() && sample.size() < sampleSize) {
+                    sample.add(stratum.poll());
+                }
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Lower bound of the probability that the sample would have contained a corrupted resource if the configured
+     * share of the resources were corrupted.
+     *
+     * <p>If k of the N resources are corrupted, a sample that contains every resource with a rate of at least r misses
+     * all of them with a probability of at most (1 - r)^k. Random sampling uses the same rate for every resource,
+     * stratified sampling over-samples small categories, so the lowest rate of all categories is used. A category
+     * without verified resources therefore results in a confidence of 0.</p>
+     *
+     * <p>The budget skips large resources more likely than small ones, so the verified resources of a category are
+     * no longer a uniform sample once a sampled resource was skipped. Such a category is rated with 0 as well.</p>
+     */
+    private double getConfidence(List<ZipIndexEntry> candidates, Set<String> verifiedPaths,
+                                 Set<String> skippedPaths) {
+        if (verifiedPaths.size() >= candidates.size()) {
+            return 1;
+        }
+
+        Map<EntryCategory, Integer> candidateCounts = new EnumMap<>(EntryCategory.class);
+        Map<EntryCategory, Integer> verifiedCounts = new EnumMap<>(EntryCategory.class);
+        Set<EntryCategory> skippedStrata = EnumSet.noneOf(EntryCategory.class);
+        for (ZipIndexEntry candidate : candidates) {
+            EntryCategory stratum = options.sampling() == SpotCheckOptions.Sampling.STRATIFIED
+                    ? candidate.category() : EntryCategory.OTHER;
+            candidateCounts.merge(stratum, 1, Integer::sum);
+            if (verifiedPaths.contains(candidate.path())) {
+                verifiedCounts.merge(stratum, 1, Integer::sum);
+            }
+            if (skippedPaths.contains(candidate.path())) {
+                skippedStrata.add(stratum);
+            }
+        }
+
+        double minimumRate = 1;
+        for (Map.Entry<EntryCategory, Integer> candidateCount : candidateCounts.entrySet()) {
+            double rate = skippedStrata.contains(candidateCount.getKey()) ? 0
+                    : (double) verifiedCounts.getOrDefault(candidateCount.getKey(), 0) / candidateCount.getValue();
+            minimumRate = Math.min(minimumRate, rate);
+        }
+
+        double corruptedCount = Math.ceil(options.failureTolerance() * candidates.size());
+        return 1 - Math.pow(1 - minimumRate, corruptedCount);
+    }
+
+    private boolean fitsBudget(ZipIndexEntry entry) {
+        if (isPastDeadline() || bytesRead + entry.size() > options.byteBudget()) {
+            budgetExhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isPastDeadline() {
+        return options.timeBudget()
+                .map(timeBudget -> System.nanoTime() - startTime > timeBudget.toNanos())
+                .orElse(false);
+    }
+
+    /**
+     * Read the entry data into the given checksums
+     *
+     * @return false if the time budget was used up before the entry was read completely
+     */
+    private boolean read(ZipIndexEntry entry, MessageDigest messageDigest, CRC32 crc) throws IOException {
+        try (InputStream is = reader.getInputStream(entry)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bytesRead += read;
+                if (messageDigest != null) {
+                    messageDigest.update(buffer, 0, read);
+                }
+                if (crc != null) {
+                    crc.update(buffer, 0, read);
+                }
+                if (is.available() > 0 && isPastDeadline()) {
+                    budgetExhausted = true;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -7,27 +7,42 @@ import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
 import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
+import org.apache.commons.codec.binary.Hex;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
+/**
+ * WACZ archive on disk.
+ *
+ * <p>Instances are immutable and can be used from multiple threads. Each method opens the archive on its own, to
+ * share one open archive between threads use {@link #openReader()}.</p>
+ */
 public class WaczArchive {
 
-    private static final Pattern ARCHIVE_PATTERN = Pattern.compile("archive/.+\\.warc(\\.gz)?");
-    private static final Pattern INDEX_PATTERN = Pattern.compile("indexes/.+\\.cdx(\\.gz)?");
-
     private final File waczFile;
 
     public WaczArchive(File waczFile) {
         this.waczFile = waczFile;
     }
 
+    /**
+     * Open the archive for reading entries.
+     *
+     * <p>The returned reader can be shared by multiple threads, see {@link WaczReader}.</p>
+     *
+     * @return reader for the archive, must be closed by the caller
+     * @throws ZipException if the file is not a valid zip archive
+     * @throws IOException if the file is not accessible
+     */
+    public WaczReader openReader() throws IOException {
+        return WaczReader.open(waczFile);
+    }
+
     /**
      * Assert that the given file is a valid WACZ archive
      *
@@ -35,48 +50,36 @@ public class WaczArchive {
      * @throws IOException if the file is not accessible
      */
     public void validate() throws InvalidWaczException, IOException {
-        ZipFile waczArchive;
+        WaczReader reader;
         try {
-            waczArchive = getZipFile();
+            reader = openReader();
         } catch (ZipException e) {
             throw new InvalidWaczException("File is not a valid zip archive");
         }
 
-        ZipEntry datapackageEntry = waczArchive.getEntry("datapackage.json");
-        if (datapackageEntry == null) {
-            throw new InvalidWaczException("datapackage.json does not exist");
-        }
-        validateDatapackage(waczArchive.getInputStream(datapackageEntry));
-
-        ZipEntry pagesEntry = waczArchive.getEntry("pages/pages.jsonl");
-        if (pagesEntry == null) {
-            throw new InvalidWaczException("pages/pages.jsonl does not exist");
-        }
-        validatePages(waczArchive.getInputStream(pagesEntry));
-
-        List<ZipEntry> archiveEntries = new ArrayList<>();
-        List<ZipEntry> indexEntries = new ArrayList<>();
-
-        for (Enumeration<? extends ZipEntry> e = waczArchive.entries(); e.hasMoreElements();) {
-            ZipEntry currentEntry = e.nextElement();
-
-            Matcher archiveMatcher = ARCHIVE_PATTERN.matcher(currentEntry.getName());
-            if (archiveMatcher.matches()) {
-                archiveEntries.add(currentEntry);
+        try (reader) {
+            if (!reader.hasEntry("datapackage.json")) {
+                throw new InvalidWaczException("datapackage.json does not exist");
+            }
+            try (InputStream is = reader.getInputStream("datapackage.json")) {
+                validateDatapackage(is);
             }
 
-            Matcher indexMatcher = INDEX_PATTERN.matcher(currentEntry.getName());
-            if (indexMatcher.matches()) {
-                indexEntries.add(currentEntry);
+            if (!reader.hasEntry("pages/pages.jsonl")) {
+                throw new InvalidWaczException("pages/pages.jsonl does not exist");
+            }
+            try (InputStream is = reader.getInputStream("pages/pages.jsonl")) {
+                validatePages(is);
             }
-        }
 
-        if (archiveEntries.size() == 0) {
-            throw new InvalidWaczException("wacz contains no archives");
-        }
+            ZipIndex index = reader.getIndex();
+            if (index.getEntries(EntryCategory.ARCHIVE).isEmpty()) {
+                throw new InvalidWaczException("wacz contains no archives");
+            }
 
-        if (indexEntries.size() == 0) {
-            throw new InvalidWaczException("wacz contains no indexes");
+            if (index.getEntries(EntryCategory.INDEX).isEmpty()) {
+                throw new InvalidWaczException("wacz contains no indexes");
+            }
         }
     }
 
@@ -88,7 +91,23 @@ public class WaczArchive {
      * @throws IOException if a file wasn't readable
      */
     public WaczMetadata getMetadata() throws InvalidWaczException, IOException {
-        Datapackage datapackage = getDatapackage();
+        try (WaczReader reader = openReader()) {
+            return getMetadata(reader);
+        }
+    }
+
+    /**
+     * Get metadata of the wacz archive from the datapackage file using an already opened reader
+     *
+     * @param reader open reader of this archive
+     * @return a wacz metadata object
+     * @throws InvalidWaczException if the datapackage was invalid or not found
+     * @throws IOException if a file wasn't readable
+     * @throws IllegalArgumentException if the reader was opened for a different file
+     */
+    public WaczMetadata getMetadata(WaczReader reader) throws InvalidWaczException, IOException {
+        checkReader(reader);
+        Datapackage datapackage = getDatapackage(reader);
 
         WaczMetadata.Builder metadataBuilder = new WaczMetadata.Builder();
 
@@ -137,10 +156,222 @@ public class WaczArchive {
      *      platform
      */
     public Map<String, Boolean> verifyChecksums() throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        try (WaczReader reader = openReader()) {
+            return verifyChecksums(reader);
+        }
+    }
+
+    /**
+     * Verify checksums of datapackage resources using an already opened reader
+     *
+     * @param reader open reader of this archive
+     * @return map with file paths as keys and true if the checksum did match and false otherwise
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if a file was not found or wasn't readable
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     * @throws IllegalArgumentException if the reader was opened for a different file
+     */
+    public Map<String, Boolean> verifyChecksums(WaczReader reader)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        checkReader(reader);
+        Map<String, Boolean> checksums = new HashMap<>();
+
+        for (Map.Entry<String, HashValue> expected : getExpectedHashValues(reader).entrySet()) {
+            HashValue hashValue = expected.getValue();
+
+            String strDigest = HashingHelper.calculateChecksum(reader.getInputStream(expected.getKey()),
+                    hashValue.getAlgorithm());
+
+            checksums.put(expected.getKey(), strDigest.equals(hashValue.getValue()));
+        }
+
+        return checksums;
+    }
+
+    /**
+     * Verify the archive probabilistically within a byte and time budget.
+     *
+     * <p>Existence and declared size of every resource are always checked. The zip CRC is verified for small
+     * entries and the checksum is calculated only for a sample of the resources, as long as the budget allows.</p>
+     *
+     * @param options sample size, budget and sampling strategy
+     * @return statuses of the checked files and the confidence of the result
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if the archive wasn't readable
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     */
+    public SpotCheckResult spotCheck(SpotCheckOptions options)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        // the time budget includes opening the archive and parsing the datapackage
+        long startTime = System.nanoTime();
+        try (WaczReader reader = openReader()) {
+            return spotCheck(reader, options, startTime);
+        }
+    }
+
+    /**
+     * Verify the archive probabilistically within a byte and time budget using an already opened reader
+     *
+     * @param reader open reader of this archive
+     * @param options sample size, budget and sampling strategy
+     * @return statuses of the checked files and the confidence of the result
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if the archive wasn't readable
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     * @see #spotCheck(SpotCheckOptions)
+     * @throws IllegalArgumentException if the reader was opened for a different file
+     */
+    public SpotCheckResult spotCheck(WaczReader reader, SpotCheckOptions options)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        return spotCheck(reader, options, System.nanoTime());
+    }
+
+    private SpotCheckResult spotCheck(WaczReader reader, SpotCheckOptions options, long startTime)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        checkReader(reader);
+        Datapackage datapackage = getDatapackage(reader);
+        Map<String, HashValue> expectedHashValues = getExpectedHashValues(reader, datapackage);
+        return new SpotChecker(reader, options, startTime).check(datapackage.getResources(), expectedHashValues);
+    }
+
+    /**
+     * Extract a single entry of the archive to a file
+     *
+     * @param path path of the entry inside the archive
+     * @param target file to write the entry data to, an existing file is overwritten
+     * @throws IOException if the entry was not found or reading or writing failed
+     */
+    public void extract(String path, Path target) throws IOException {
+        try (WaczReader reader = openReader()) {
+            reader.extract(path, target);
+        }
+    }
+
+    /**
+     * Extract a single entry of the archive to a file and verify it against the hash declared in the datapackage
+     * while extracting
+     *
+     * @param path path of the entry inside the archive
+     * @param target file to write the entry data to, an existing file is overwritten
+     * @return true if the checksum did match and false otherwise
+     * @throws InvalidWaczException if the datapackage was invalid or declares no hash for the entry
+     * @throws IOException if the entry was not found or reading or writing failed
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     */
+    public boolean extractVerified(String path, Path target)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        try (WaczReader reader = openReader()) {
+            HashValue hashValue = getExpectedHashValues(reader).get(path);
+            if (hashValue == null) {
+                throw new InvalidWaczException("datapackage declares no hash for " + path);
+            }
+
+            String strDigest = reader.extract(path, target, hashValue.getAlgorithm());
+            return strDigest.equals(hashValue.getValue());
+        }
+    }
+
+    /**
+     * Extract all entries of the archive into a directory without verifying the checksums.
+     *
+     * <p>Stored entries are copied with {@link java.nio.channels.FileChannel#transferTo}. Use
+     * {@link #extractAll(Path, boolean)} to verify the datapackage resources while extracting, or
+     * {@link #extractVerified(String, Path)} for a single entry.</p>
+     *
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @return empty map, checksums are only returned by {@link #extractAll(Path, boolean)}
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if a file was not found, wasn't readable or couldn't be written
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     */
+    public Map<String, Boolean> extractAll(Path directory)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        return extractAll(directory, false);
+    }
+
+    /**
+     * Extract all entries of the archive into a directory.
+     *
+     * <p>Without verification stored entries are copied with {@link java.nio.channels.FileChannel#transferTo}, so
+     * their data doesn't pass through the java heap.</p>
+     *
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @param verify true to verify the checksums of the datapackage resources while extracting
+     * @return map with file paths as keys and true if the checksum did match and false otherwise, empty if verify
+     *      is false
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if a file was not found, wasn't readable or couldn't be written
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     */
+    public Map<String, Boolean> extractAll(Path directory, boolean verify)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        try (WaczReader reader = openReader()) {
+            return extractAll(reader, directory, Runtime.getRuntime().availableProcessors(), verify);
+        }
+    }
+
+    /**
+     * Extract all entries of the archive into a directory using an already opened reader
+     *
+     * @param reader open reader of this archive
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @param parallelism number of entries that are extracted concurrently
+     * @param verify true to verify the checksums of the datapackage resources while extracting
+     * @return map with file paths as keys and true if the checksum did match and false otherwise, empty if verify
+     *      is false
+     * @throws InvalidWaczException if the datapackage was invalid
+     * @throws IOException if a file was not found, wasn't readable or couldn't be written
+     * @throws NoSuchAlgorithmException if the datapackage used a hashing algo that is not supported by the java
+     *      platform
+     * @throws IllegalArgumentException if the reader was opened for a different file
+     */
+    public Map<String, Boolean> extractAll(WaczReader reader, Path directory, int parallelism, boolean verify)
+            throws InvalidWaczException, IOException, NoSuchAlgorithmException {
+        checkReader(reader);
+        if (!verify) {
+            reader.extractAll(directory, parallelism);
+            return Map.of();
+        }
+
+        Map<String, HashValue> expectedHashValues = getExpectedHashValues(reader);
+
+        Map<String, MessageDigest> messageDigests = new HashMap<>();
+        for (Map.Entry<String, HashValue> expected : expectedHashValues.entrySet()) {
+            if (!reader.hasEntry(expected.getKey())) {
+                throw new FileNotFoundException(expected.getKey() + " does not exist");
+            }
+            messageDigests.put(expected.getKey(), MessageDigest.getInstance(expected.getValue().getAlgorithm()));
+        }
+
+        reader.extractAll(directory, parallelism, messageDigests);
+
         Map<String, Boolean> checksums = new HashMap<>();
+        for (Map.Entry<String, HashValue> expected : expectedHashValues.entrySet()) {
+            String strDigest = Hex.encodeHexString(messageDigests.get(expected.getKey()).digest());
+            checksums.put(expected.getKey(), strDigest.equals(expected.getValue().getValue()));
+        }
+        return checksums;
+    }
 
-        Datapackage datapackage = getDatapackage();
-        ZipFile zipFile = getZipFile();
+    /**
+     * Collect the hash values declared for the datapackage resources and, if datapackage-digest.json exists, for
+     * datapackage.json
+     *
+     * @return map with file paths as keys and the declared hash values
+     */
+    private Map<String, HashValue> getExpectedHashValues(WaczReader reader) throws InvalidWaczException, IOException {
+        return getExpectedHashValues(reader, getDatapackage(reader));
+    }
+
+    private Map<String, HashValue> getExpectedHashValues(WaczReader reader, Datapackage datapackage)
+            throws InvalidWaczException, IOException {
+        Map<String, HashValue> hashValues = new LinkedHashMap<>();
 
         if (datapackage.getResources() == null) {
             throw new InvalidWaczException("resources property must be set");
@@ -151,41 +382,33 @@ public class WaczArchive {
                 continue;
             }
 
-            HashValue hashValue = HashingHelper.getHashValue(resource.getHash());
-
-            ZipEntry entry = zipFile.getEntry(resource.getPath());
-            InputStream is = zipFile.getInputStream(entry);
-
-            String strDigest = HashingHelper.calculateChecksum(is, hashValue.getAlgorithm());
-
-            checksums.put(resource.getPath(), strDigest.equals(hashValue.getValue()));
+            hashValues.put(resource.getPath(), HashingHelper.getHashValue(resource.getHash()));
         }
 
-        // verify datapackage.json checksum if datapackage-digest.json exists
-        ZipEntry datapackageDigestEntry = zipFile.getEntry("datapackage-digest.json");
-        if (datapackageDigestEntry != null) {
+        // datapackage.json has a checksum if datapackage-digest.json exists
+        if (reader.hasEntry("datapackage-digest.json")) {
             ObjectMapper mapper = new ObjectMapper();
             mapper.registerModule(new JavaTimeModule());
-            DatapackageDigest datapackageDigest = mapper.readValue(zipFile.getInputStream(datapackageDigestEntry),
-                    DatapackageDigest.class);
-
-            HashValue hashValue = HashingHelper.getHashValue(datapackageDigest.getHash());
+            DatapackageDigest datapackageDigest;
+            try (InputStream is = reader.getInputStream("datapackage-digest.json")) {
+                datapackageDigest = mapper.readValue(is, DatapackageDigest.class);
+            }
 
-            ZipEntry entry = zipFile.getEntry("datapackage.json");
-            InputStream is = zipFile.getInputStream(entry);
+            hashValues.put("datapackage.json", HashingHelper.getHashValue(datapackageDigest.getHash()));
+        }
 
-            String strDigest = HashingHelper.calculateChecksum(is, hashValue.getAlgorithm());
+        return hashValues;
+    }
 
-            checksums.put("datapackage.json", strDigest.equals(hashValue.getValue()));
+    private void checkReader(WaczReader reader) {
+        Path readerPath = reader.getFile().toPath().toAbsolutePath().normalize();
+        if (!readerPath.equals(waczFile.toPath().toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("reader of " + reader.getFile() + " does not belong to " + waczFile);
         }
-
-        return checksums;
     }
 
-    private Datapackage getDatapackage() throws InvalidWaczException, IOException {
-        ZipFile zipFile = getZipFile();
-        ZipEntry datapackageEntry = zipFile.getEntry("datapackage.json");
-        if (datapackageEntry == null) {
+    Datapackage getDatapackage(WaczReader reader) throws InvalidWaczException, IOException {
+        if (!reader.hasEntry("datapackage.json")) {
             throw new InvalidWaczException("datapackage.json does not exist");
         }
 
@@ -193,8 +416,8 @@ public class WaczArchive {
         mapper.registerModule(new JavaTimeModule());
         Datapackage datapackage;
 
-        try {
-            datapackage = mapper.readValue(zipFile.getInputStream(datapackageEntry), Datapackage.class);
+        try (InputStream is = reader.getInputStream("datapackage.json")) {
+            datapackage = mapper.readValue(is, Datapackage.class);
         } catch (Exception e) {
             throw new InvalidWaczException("datapackage.json is no valid json");
         }
@@ -254,8 +477,4 @@ public class WaczArchive {
         }
     }
 
-    private ZipFile getZipFile() throws IOException {
-        return new ZipFile(waczFile);
-    }
-
 }
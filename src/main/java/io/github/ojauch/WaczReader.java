@@ -0,0 +1,558 @@
+package io.github.ojauch;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Open WACZ archive that can be shared by many threads.
+ *
+ * <p>All reads are positional reads on a single {@link FileChannel}, so streams of the same reader don't share any
+ * position and can be used concurrently without locking. Inflaters and read buffers are taken from pools and
+ * returned when a stream is closed. A single stream is not thread-safe.</p>
+ *
+ * <p>The reader must be closed when it is no longer used. Streams that are still open when the reader gets closed
+ * fail on their next read.</p>
+ */
+public final class WaczReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File waczFile;
+    private final ZipIndex index;
+    private final Queue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
+    private final Map<String, Long> dataOffsets = new ConcurrentHashMap<>();
+
+    private volatile FileChannel channel;
+    private volatile boolean closed = false;
+
+    private WaczReader(File waczFile, FileChannel channel, ZipIndex index) {
+        this.waczFile = waczFile;
+        this.channel = channel;
+        this.index = index;
+    }
+
+    /**
+     * Open a WACZ file for reading
+     *
+     * @param waczFile file to open
+     * @return reader for the file
+     * @throws ZipException if the file is not a valid zip archive
+     * @throws IOException if the file is not readable
+     */
+    public static WaczReader open(File waczFile) throws IOException {
+        FileChannel channel = FileChannel.open(waczFile.toPath(), StandardOpenOption.READ);
+        try {
+            return new WaczReader(waczFile, channel, ZipIndex.read(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the archive contains an entry
+     *
+     * @param path path of the entry inside the archive
+     * @return true if the entry exists
+     */
+    public boolean hasEntry(String path) {
+        return index.getEntry(path) != null;
+    }
+
+    /**
+     * Get an input stream for the uncompressed data of an entry
+     *
+     * @param path path of the entry inside the archive
+     * @return input stream for the entry data, must be closed to return pooled resources
+     * @throws FileNotFoundException if the archive has no entry with the given path
+     * @throws IOException if the reader is closed or the entry uses an unsupported compression method
+     */
+    public InputStream getInputStream(String path) throws IOException {
+        return getInputStream(getExistingEntry(path));
+    }
+
+    /**
+     * Extract an entry to a file.
+     *
+     * <p>Stored entries are copied with {@link FileChannel#transferTo}, so their data doesn't pass through the java
+     * heap. Deflated entries are inflated while copying.</p>
+     *
+     * @param path path of the entry inside the archive
+     * @param target file to write the entry data to, an existing file is overwritten
+     * @throws FileNotFoundException if the archive has no entry with the given path
+     * @throws IOException if reading the entry or writing the target fails
+     */
+    public void extract(String path, Path target) throws IOException {
+        extract(getExistingEntry(path), target, null);
+    }
+
+    /**
+     * Extract an entry to a file and calculate its checksum while copying.
+     *
+     * <p>The checksum needs the data of the entry, so stored entries are copied through a pooled heap buffer
+     * instead of {@link FileChannel#transferTo}. The archive is still read only once.</p>
+     *
+     * @param path path of the entry inside the archive
+     * @param target file to write the entry data to, an existing file is overwritten
+     * @param algorithm hashing algorithm to use to calculate the checksum
+     * @return hex string representation of the checksum
+     * @throws FileNotFoundException if the archive has no entry with the given path
+     * @throws IOException if reading the entry or writing the target fails
+     * @throws NoSuchAlgorithmException if there is no implementation for the specified hashing algorithm
+     */
+    public String extract(String path, Path target, String algorithm) throws IOException, NoSuchAlgorithmException {
+        ZipIndexEntry entry = getExistingEntry(path);
+        MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+        extract(entry, target, messageDigest);
+        return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    /**
+     * Extract all entries into a directory, using one thread per available processor
+     *
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @throws ZipException if an entry path points outside of the directory
+     * @throws IOException if reading an entry or writing a file fails
+     */
+    public void extractAll(Path directory) throws IOException {
+        extractAll(directory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Extract all entries into a directory
+     *
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @param parallelism number of entries that are extracted concurrently
+     * @throws ZipException if an entry path points outside of the directory
+     * @throws IOException if reading an entry or writing a file fails
+     */
+    public void extractAll(Path directory, int parallelism) throws IOException {
+        extractAll(directory, parallelism, Map.of());
+    }
+
+    /**
+     * Extract all entries into a directory and calculate checksums of some entries while copying
+     *
+     * @param directory directory to extract the entries to, created if it doesn't exist
+     * @param parallelism number of entries that are extracted concurrently
+     * @param messageDigests digests to update with the data of the entry with the same path, each digest may only be
+     *      used for one entry
+     * @throws ZipException if an entry path points outside of the directory
+     * @throws IOException if reading an entry or writing a file fails
+     */
+    void extractAll(Path directory, int parallelism, Map<String, MessageDigest> messageDigests) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        Path root = directory.toAbsolutePath().normalize();
+        Map<ZipIndexEntry, Path> targets = new LinkedHashMap<>();
+        // resolve all targets first, so nothing is written for an archive with a malicious entry path
+        for (ZipIndexEntry entry : index.entries()) {
+            Path target = root.resolve(entry.path()).normalize();
+            if (!target.startsWith(root) || target.equals(root)) {
+                throw new ZipException("entry " + entry.path() + " is outside of the target directory");
+            }
+            targets.put(entry, target);
+        }
+
+        Files.createDirectories(root);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Map.Entry<ZipIndexEntry, Path> target : targets.entrySet()) {
+                ZipIndexEntry entry = target.getKey();
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target.getValue());
+                    continue;
+                }
+
+                MessageDigest messageDigest = messageDigests.get(entry.path());
+                results.add(executor.submit(() -> {
+                    Files.createDirectories(target.getValue().getParent());
+                    extract(entry, target.getValue(), messageDigest);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> result : results) {
+                awaitExtraction(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Close the reader and release the file channel and pooled inflaters.
+     *
+     * <p>Synchronized with reopening the channel, so a channel reopened after an interrupt can't outlive the
+     * reader.</p>
+     *
+     * @throws IOException if closing the channel fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+
+        Inflater inflater;
+        while ((inflater = inflaterPool.poll()) != null) {
+            inflater.end();
+        }
+        bufferPool.clear();
+    }
+
+    File getFile() {
+        return waczFile;
+    }
+
+    ZipIndex getIndex() {
+        return index;
+    }
+
+    private ZipIndexEntry getExistingEntry(String path) throws FileNotFoundException {
+        ZipIndexEntry entry = index.getEntry(path);
+        if (entry == null) {
+            throw new FileNotFoundException(path + " does not exist");
+        }
+        return entry;
+    }
+
+    private void extract(ZipIndexEntry entry, Path target, MessageDigest messageDigest) throws IOException {
+        ensureOpen();
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (entry.isStored() && messageDigest == null) {
+                transferStored(entry, out);
+            } else {
+                try (InputStream is = getInputStream(entry)) {
+                    copy(is, out, messageDigest);
+                }
+            }
+        }
+    }
+
+    private void transferStored(ZipIndexEntry entry, FileChannel out) throws IOException {
+        long position = getDataOffset(entry);
+        long remaining = entry.compressedSize();
+        while (remaining > 0) {
+            long transferPosition = position;
+            long transferCount = remaining;
+            long transferred = withChannel(channel -> channel.transferTo(transferPosition, transferCount, out));
+            if (transferred <= 0) {
+                throw new EOFException("unexpected end of zip archive");
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private void copy(InputStream is, FileChannel out, MessageDigest messageDigest) throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                if (messageDigest != null) {
+                    messageDigest.update(buffer, 0, read);
+                }
+                writeFully(out, ByteBuffer.wrap(buffer, 0, read));
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void awaitExtraction(Future<Void> result) throws IOException {
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("extraction was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("extraction failed", cause);
+        }
+    }
+
+    InputStream getInputStream(ZipIndexEntry entry) throws IOException {
+        ensureOpen();
+        return switch (entry.method()) {
+            case ZipEntry.STORED -> new StoredEntryInputStream(entry, getDataOffset(entry));
+            case ZipEntry.DEFLATED -> new DeflatedEntryInputStream(entry, getDataOffset(entry));
+            default -> throw new ZipException("unsupported compression method " + entry.method() + " of "
+                    + entry.path());
+        };
+    }
+
+    /**
+     * Get the offset of the entry data, the local header is only read the first time an entry is opened
+     */
+    private long getDataOffset(ZipIndexEntry entry) throws IOException {
+        Long cached = dataOffsets.get(entry.path());
+        if (cached != null) {
+            return cached;
+        }
+        long dataOffset = withChannel(channel -> ZipIndex.readDataOffset(channel, entry));
+        dataOffsets.put(entry.path(), dataOffset);
+        return dataOffset;
+    }
+
+    /**
+     * Read bytes from the archive at the given position without changing any shared state
+     *
+     * @return number of bytes read or -1 at the end of the file
+     */
+    int read(ByteBuffer buffer, long position) throws IOException {
+        return withChannel(channel -> channel.read(buffer, position));
+    }
+
+    /**
+     * Run a positional operation on the shared channel.
+     *
+     * <p>Interrupting a thread that is blocked in a channel operation closes the channel for every thread. In that
+     * case the channel is reopened, so only the interrupted thread sees the failure.</p>
+     */
+    private <T> T withChannel(ChannelOperation<T> operation) throws IOException {
+        while (true) {
+            FileChannel current = channel;
+            try {
+                return operation.apply(current);
+            } catch (ClosedByInterruptException e) {
+                reopen(current);
+                throw e;
+            } catch (ClosedChannelException e) {
+                ensureOpen();
+                if (current.isOpen()) {
+                    // another channel involved in the operation was closed
+                    throw e;
+                }
+                reopen(current);
+            }
+        }
+    }
+
+    private synchronized void reopen(FileChannel closedChannel) throws IOException {
+        ensureOpen();
+        if (channel == closedChannel && !closedChannel.isOpen()) {
+            channel = FileChannel.open(waczFile.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("reader is closed");
+        }
+    }
+
+    private Inflater acquireInflater() {
+        Inflater inflater = inflaterPool.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    private void releaseInflater(Inflater inflater) {
+        if (closed) {
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        inflaterPool.offer(inflater);
+        // close() may have drained the pool between the check above and the offer
+        if (closed && inflaterPool.remove(inflater)) {
+            inflater.end();
+        }
+    }
+
+    private byte[] acquireBuffer() {
+        byte[] buffer = bufferPool.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        if (!closed) {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    /**
+     * Stream over the raw entry data, reading directly into the caller's array
+     */
+    private class StoredEntryInputStream extends InputStream {
+        private final byte[] singleByte = new byte[1];
+        private long position;
+        private long remaining;
+
+        StoredEntryInputStream(ZipIndexEntry entry, long dataOffset) {
+            this.position = dataOffset;
+            this.remaining = entry.compressedSize();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(singleByte[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int read = WaczReader.this.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("unexpected end of zip archive");
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Stream that inflates the entry data using a pooled inflater and input buffer
+     */
+    private class DeflatedEntryInputStream extends InputStream {
+        private final byte[] singleByte = new byte[1];
+        private final String path;
+        private long position;
+        private long remaining;
+        private long uncompressedRemaining;
+        private Inflater inflater;
+        private byte[] buffer;
+        private boolean dummyByteSent = false;
+
+        DeflatedEntryInputStream(ZipIndexEntry entry, long dataOffset) {
+            this.path = entry.path();
+            this.position = dataOffset;
+            this.remaining = entry.compressedSize();
+            this.uncompressedRemaining = entry.size();
+            this.inflater = acquireInflater();
+            this.buffer = acquireBuffer();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(singleByte[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (inflater == null) {
+                throw new IOException("stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            try {
+                int inflated;
+                while ((inflated = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        fill();
+                    }
+                }
+                uncompressedRemaining -= inflated;
+                return inflated;
+            } catch (DataFormatException e) {
+                throw new ZipException("invalid deflate data of " + path);
+            }
+        }
+
+        @Override
+        public int available() {
+            if (inflater == null || inflater.finished()) {
+                return 0;
+            }
+            return (int) Math.min(uncompressedRemaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            if (inflater != null) {
+                releaseInflater(inflater);
+                releaseBuffer(buffer);
+                inflater = null;
+                buffer = null;
+            }
+        }
+
+        private void fill() throws IOException {
+            if (remaining <= 0) {
+                // an inflater without zlib header needs an extra dummy byte after the compressed data
+                if (dummyByteSent) {
+                    throw new EOFException("unexpected end of deflate data of " + path);
+                }
+                dummyByteSent = true;
+                buffer[0] = 0;
+                inflater.setInput(buffer, 0, 1);
+                return;
+            }
+
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, remaining));
+            int read = WaczReader.this.read(byteBuffer, position);
+            if (read < 0) {
+                throw new EOFException("unexpected end of zip archive");
+            }
+            position += read;
+            remaining -= read;
+            inflater.setInput(buffer, 0, read);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChannelOperation<T> {
+        T apply(FileChannel channel) throws IOException;
+    }
+}
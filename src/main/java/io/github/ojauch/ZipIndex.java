@@ -0,0 +1,316 @@
+package io.github.ojauch;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.ZipException;
+
+/**
+ * Immutable index of the entries of a zip archive, built from its central directory.
+ *
+ * <p>Unlike {@link java.util.zip.ZipFile} the index exposes the local header offset of each entry and resolves the
+ * offset of its data on demand, so readers can access the data with positional reads. The index itself is built from
+ * a single read of the central directory. Archives and entries larger than 4 GB are supported through the ZIP64
+ * extensions. Entries are classified into {@link EntryCategory categories} while the index is built.</p>
+ */
+final class ZipIndex {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_MIN_LENGTH = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_MIN_LENGTH = 56;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_SHORT = 0xFFFF;
+
+    private final Map<String, ZipIndexEntry> entries;
+    private final Map<EntryCategory, List<ZipIndexEntry>> categories;
+
+    private ZipIndex(Map<String, ZipIndexEntry> entries, Map<EntryCategory, List<ZipIndexEntry>> categories) {
+        this.entries = entries;
+        this.categories = categories;
+    }
+
+    /**
+     * Read the index of a zip file
+     *
+     * @param file zip file to index
+     * @return index of the entries of the file
+     * @throws ZipException if the file is not a valid zip archive
+     * @throws IOException if the file is not readable
+     */
+    static ZipIndex read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Read the index of a zip archive from a channel.
+     *
+     * <p>Only positional reads are used, so the position of the channel is left unchanged.</p>
+     *
+     * @param channel channel of the zip archive
+     * @return index of the entries of the archive
+     * @throws ZipException if the archive is not a valid zip archive
+     * @throws IOException if the channel is not readable
+     */
+    static ZipIndex read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailLength = (int) Math.min(fileSize, EOCD_MIN_LENGTH + MAX_COMMENT_LENGTH);
+        if (tailLength < EOCD_MIN_LENGTH) {
+            throw new ZipException("zip END header not found");
+        }
+
+        long tailStart = fileSize - tailLength;
+        ByteBuffer tail = readFully(channel, tailStart, tailLength);
+        int eocdPosition = findEndOfCentralDirectory(tail);
+        if (eocdPosition < 0) {
+            throw new ZipException("zip END header not found");
+        }
+
+        long entryCount = Short.toUnsignedLong(tail.getShort(eocdPosition + 10));
+        long cdSize = Integer.toUnsignedLong(tail.getInt(eocdPosition + 12));
+        long cdOffset = Integer.toUnsignedLong(tail.getInt(eocdPosition + 16));
+
+        long locatorPosition = tailStart + eocdPosition - ZIP64_EOCD_LOCATOR_LENGTH;
+        if (locatorPosition >= 0) {
+            ByteBuffer locator = readFully(channel, locatorPosition, ZIP64_EOCD_LOCATOR_LENGTH);
+            if (locator.getInt(0) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+                long zip64EocdOffset = locator.getLong(8);
+                if (zip64EocdOffset < 0 || zip64EocdOffset > fileSize - ZIP64_EOCD_MIN_LENGTH) {
+                    throw new ZipException("invalid zip64 END header offset");
+                }
+                ByteBuffer zip64Eocd = readFully(channel, zip64EocdOffset, ZIP64_EOCD_MIN_LENGTH);
+                if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                    throw new ZipException("zip64 END header not found");
+                }
+                entryCount = zip64Eocd.getLong(32);
+                cdSize = zip64Eocd.getLong(40);
+                cdOffset = zip64Eocd.getLong(48);
+            }
+        }
+
+        if (cdOffset < 0 || cdSize < 0 || cdOffset + cdSize > fileSize) {
+            throw new ZipException("invalid central directory offset or size");
+        }
+        if (cdSize > Integer.MAX_VALUE) {
+            throw new ZipException("central directory too large");
+        }
+
+        ByteBuffer cd = readFully(channel, cdOffset, (int) cdSize);
+        return parseCentralDirectory(cd, entryCount, fileSize);
+    }
+
+    /**
+     * Get an entry by its path
+     *
+     * @param path path of the entry inside the archive
+     * @return the entry or null if there is no entry with the given path
+     */
+    ZipIndexEntry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Get all entries of the given category
+     *
+     * @param category category of the entries
+     * @return unmodifiable list of the entries in central directory order
+     */
+    List<ZipIndexEntry> getEntries(EntryCategory category) {
+        return categories.get(category);
+    }
+
+    /**
+     * Get all entries of the archive
+     *
+     * @return unmodifiable collection of the entries in central directory order
+     */
+    Collection<ZipIndexEntry> entries() {
+        return entries.values();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Read the local file header of an entry to find the start of its data.
+     *
+     * <p>The local header may have a different extra field than the central directory header, so the offset can't be
+     * derived from the central directory alone. It is only read when an entry is opened, so building the index needs
+     * no read per entry.</p>
+     *
+     * @param channel channel of the zip archive
+     * @param entry entry of this index
+     * @return offset of the first byte of entry data in the archive
+     * @throws ZipException if the local header is invalid
+     * @throws IOException if the channel is not readable
+     */
+    static long readDataOffset(FileChannel channel, ZipIndexEntry entry) throws IOException {
+        ByteBuffer localHeader = readFully(channel, entry.localHeaderOffset(), LOCAL_HEADER_LENGTH);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("invalid local header for " + entry.path());
+        }
+
+        int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+        int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+        long dataOffset = entry.localHeaderOffset() + LOCAL_HEADER_LENGTH + nameLength + extraLength;
+        if (dataOffset + entry.compressedSize() > channel.size()) {
+            throw new ZipException("entry data of " + entry.path() + " exceeds archive size");
+        }
+        return dataOffset;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int i = tail.limit() - EOCD_MIN_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                int commentLength = Short.toUnsignedInt(tail.getShort(i + 20));
+                if (i + EOCD_MIN_LENGTH + commentLength <= tail.limit()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static ZipIndex parseCentralDirectory(ByteBuffer cd, long entryCount, long fileSize)
+            throws ZipException {
+        Map<String, ZipIndexEntry> entries = new LinkedHashMap<>();
+        Map<EntryCategory, List<ZipIndexEntry>> categories = new EnumMap<>(EntryCategory.class);
+        for (EntryCategory category : EntryCategory.values()) {
+            categories.put(category, new ArrayList<>());
+        }
+
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_LENGTH > cd.limit() || cd.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("invalid central directory header");
+            }
+
+            int method = Short.toUnsignedInt(cd.getShort(position + 10));
+            long crc = Integer.toUnsignedLong(cd.getInt(position + 16));
+            long compressedSize = Integer.toUnsignedLong(cd.getInt(position + 20));
+            long size = Integer.toUnsignedLong(cd.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(cd.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(cd.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(cd.getShort(position + 32));
+            int diskStart = Short.toUnsignedInt(cd.getShort(position + 34));
+            long localHeaderOffset = Integer.toUnsignedLong(cd.getInt(position + 42));
+
+            int nameStart = position + CENTRAL_HEADER_LENGTH;
+            int extraStart = nameStart + nameLength;
+            int next = extraStart + extraLength + commentLength;
+            if (next > cd.limit()) {
+                throw new ZipException("invalid central directory header");
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            cd.get(nameStart, nameBytes);
+            String path = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // the zip64 extra field only contains the values whose regular field is set to the magic value
+            if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC
+                    || diskStart == ZIP64_MAGIC_SHORT) {
+                int zip64Start = findExtraField(cd, extraStart, extraLength, ZIP64_EXTRA_ID);
+                if (zip64Start < 0) {
+                    throw new ZipException("missing zip64 extra field for " + path);
+                }
+                int dataSize = Short.toUnsignedInt(cd.getShort(zip64Start + 2));
+                int fieldPosition = zip64Start + 4;
+                int fieldEnd = fieldPosition + dataSize;
+                if (size == ZIP64_MAGIC) {
+                    size = readZip64Value(cd, fieldPosition, fieldEnd, path);
+                    fieldPosition += 8;
+                }
+                if (compressedSize == ZIP64_MAGIC) {
+                    compressedSize = readZip64Value(cd, fieldPosition, fieldEnd, path);
+                    fieldPosition += 8;
+                }
+                if (localHeaderOffset == ZIP64_MAGIC) {
+                    localHeaderOffset = readZip64Value(cd, fieldPosition, fieldEnd, path);
+                }
+            }
+
+            if (localHeaderOffset > fileSize - LOCAL_HEADER_LENGTH - compressedSize) {
+                throw new ZipException("invalid local header offset for " + path);
+            }
+            ZipIndexEntry entry = new ZipIndexEntry(path, method, crc, compressedSize, size, localHeaderOffset,
+                    EntryCategory.of(path));
+
+            if (entries.putIfAbsent(path, entry) == null) {
+                categories.get(entry.category()).add(entry);
+            }
+            position = next;
+        }
+
+        for (EntryCategory category : EntryCategory.values()) {
+            categories.put(category, Collections.unmodifiableList(categories.get(category)));
+        }
+        return new ZipIndex(Collections.unmodifiableMap(entries), Collections.unmodifiableMap(categories));
+    }
+
+    /**
+     * Search the extra data of a central directory header for a field
+     *
+     * @return position of the field header in the buffer or -1 if the field does not exist
+     */
+    private static int findExtraField(ByteBuffer cd, int extraStart, int extraLength, int headerId) {
+        int position = extraStart;
+        int end = extraStart + extraLength;
+        while (position + 4 <= end) {
+            int id = Short.toUnsignedInt(cd.getShort(position));
+            int dataSize = Short.toUnsignedInt(cd.getShort(position + 2));
+            if (position + 4 + dataSize > end) {
+                return -1;
+            }
+            if (id == headerId) {
+                return position;
+            }
+            position += 4 + dataSize;
+        }
+        return -1;
+    }
+
+    private static long readZip64Value(ByteBuffer cd, int position, int end, String path) throws ZipException {
+        if (position + 8 > end) {
+            throw new ZipException("invalid zip64 extra field for " + path);
+        }
+        long value = cd.getLong(position);
+        if (value < 0) {
+            throw new ZipException("invalid zip64 extra field for " + path);
+        }
+        return value;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, position, buffer);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("unexpected end of zip archive");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.ojauch;
+
+import java.util.zip.ZipEntry;
+
+/**
+ * Single entry of a {@link ZipIndex}
+ *
+ * @param path path of the entry inside the zip archive
+ * @param method compression method, either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED} for WACZ archives
+ * @param crc CRC-32 of the uncompressed data
+ * @param compressedSize size of the entry data as stored in the archive
+ * @param size size of the uncompressed data
+ * @param localHeaderOffset offset of the local file header in the archive
+ * @param category role of the entry in the WACZ archive
+ */
+record ZipIndexEntry(
+        String path,
+        int method,
+        long crc,
+        long compressedSize,
+        long size,
+        long localHeaderOffset,
+        EntryCategory category) {
+
+    public boolean isStored() {
+        return method == ZipEntry.STORED;
+    }
+
+    public boolean isDirectory() {
+        return path.endsWith("/");
+    }
+}
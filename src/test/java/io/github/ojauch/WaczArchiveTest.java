@@ -3,7 +3,10 @@ package io.github.ojauch;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -95,4 +98,193 @@ public class WaczArchiveTest {
         Map<String, Boolean> checksums = archive.verifyChecksums();
         assertFalse(checksums.get("archive/data.warc.gz"));
     }
+
+    @Test
+    public void testExtractAll() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+        Path directory = Files.createTempDirectory("extract");
+        Map<String, Boolean> checksums = archive.extractAll(directory, true);
+
+        for (String path : checksums.keySet()) {
+            assertTrue(checksums.get(path), "Checksum of file " + path + " should match");
+        }
+        assertEquals(archive.verifyChecksums().keySet(), checksums.keySet());
+        assertTrue(Files.exists(directory.resolve("archive/data.warc.gz")));
+        assertTrue(Files.exists(directory.resolve("pages/pages.jsonl")));
+    }
+
+    @Test
+    public void testExtractAllInvalidChecksum() throws Exception {
+        File invalidWaczFile = new File(getClass().getClassLoader()
+                .getResource("invalid-checksum.wacz").getFile());
+        WaczArchive archive = new WaczArchive(invalidWaczFile);
+        Map<String, Boolean> checksums = archive.extractAll(Files.createTempDirectory("extract"), true);
+        assertFalse(checksums.get("archive/data.warc.gz"));
+    }
+
+    @Test
+    public void testExtractAllWithoutVerification() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+        Path directory = Files.createTempDirectory("extract");
+
+        assertTrue(archive.extractAll(directory).isEmpty());
+        assertTrue(Files.exists(directory.resolve("archive/data.warc.gz")));
+        assertTrue(Files.exists(directory.resolve("datapackage.json")));
+    }
+
+    @Test
+    public void testExtractVerified() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        Path target = Files.createTempFile("data", ".warc.gz");
+        assertTrue(new WaczArchive(validWaczFile).extractVerified("archive/data.warc.gz", target));
+
+        File invalidWaczFile = new File(getClass().getClassLoader()
+                .getResource("invalid-checksum.wacz").getFile());
+        WaczArchive invalidArchive = new WaczArchive(invalidWaczFile);
+        assertFalse(invalidArchive.extractVerified("archive/data.warc.gz", target));
+        assertThrows(InvalidWaczException.class, () -> invalidArchive.extractVerified("does-not-exist", target));
+    }
+
+    @Test
+    public void testSpotCheck() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setSampleSize(2);
+        optionsBuilder.setSampling(SpotCheckOptions.Sampling.RANDOM);
+        optionsBuilder.setSeed(1);
+        SpotCheckResult result = archive.spotCheck(optionsBuilder.build());
+
+        assertTrue(result.isValid());
+        assertEquals(2, result.sampledCount());
+        assertEquals(2, result.verifiedCount());
+        assertEquals(2, result.statuses().values().stream()
+                .filter(status -> status == SpotCheckResult.Status.VERIFIED).count());
+        // half of the four resources with a checksum verified, one corrupted resource would be found with 0.5
+        assertEquals(0.5, result.confidence(), 1e-9);
+        assertFalse(result.budgetExhausted());
+
+        // every resource is in its own category, stratified sampling leaves two categories unverified
+        optionsBuilder.setSampling(SpotCheckOptions.Sampling.STRATIFIED);
+        SpotCheckResult stratifiedResult = archive.spotCheck(optionsBuilder.build());
+        assertEquals(2, stratifiedResult.verifiedCount());
+        assertEquals(0, stratifiedResult.confidence(), 0);
+
+        optionsBuilder.setSampleSize(Integer.MAX_VALUE);
+        SpotCheckResult fullResult = archive.spotCheck(optionsBuilder.build());
+        assertEquals(archive.verifyChecksums().keySet(), fullResult.statuses().keySet());
+        assertEquals(1, fullResult.confidence(), 0);
+    }
+
+    @Test
+    public void testSpotCheckInvalidChecksum() throws Exception {
+        File invalidWaczFile = new File(getClass().getClassLoader()
+                .getResource("invalid-checksum.wacz").getFile());
+        WaczArchive archive = new WaczArchive(invalidWaczFile);
+
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setSampleSize(Integer.MAX_VALUE);
+        SpotCheckResult result = archive.spotCheck(optionsBuilder.build());
+
+        assertFalse(result.isValid());
+        assertTrue(result.statuses().get("archive/data.warc.gz").isFailure());
+        assertEquals(0, result.confidence(), 0);
+    }
+
+    @Test
+    public void testSpotCheckByteBudget() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setByteBudget(0);
+        SpotCheckResult result = archive.spotCheck(optionsBuilder.build());
+
+        assertTrue(result.isValid());
+        assertTrue(result.budgetExhausted());
+        assertEquals(0, result.verifiedCount());
+        assertEquals(0, result.bytesRead());
+    }
+
+    @Test
+    public void testSpotCheckSampledEntryOverBudget() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+
+        // every resource is sampled, all of them fit into the budget except the warc
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setSampling(SpotCheckOptions.Sampling.RANDOM);
+        optionsBuilder.setSampleSize(4);
+        optionsBuilder.setSeed(42);
+        optionsBuilder.setByteBudget(3541 - 1);
+        SpotCheckResult result = archive.spotCheck(optionsBuilder.build());
+
+        assertTrue(result.isValid());
+        assertTrue(result.budgetExhausted());
+        assertEquals(4, result.sampledCount());
+        assertEquals(3, result.verifiedCount());
+        assertEquals(SpotCheckResult.Status.OK, result.statuses().get("archive/data.warc.gz"));
+        assertEquals(0, result.confidence(), 0);
+    }
+
+    @Test
+    public void testReaderOfOtherArchive() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        File invalidWaczFile = new File(getClass().getClassLoader()
+                .getResource("invalid-checksum.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+
+        try (WaczReader reader = new WaczArchive(invalidWaczFile).openReader()) {
+            assertThrows(IllegalArgumentException.class, () -> archive.verifyChecksums(reader));
+            assertThrows(IllegalArgumentException.class, () -> archive.getMetadata(reader));
+        }
+    }
+
+    @Test
+    public void testSpotCheckTightBudget() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczArchive archive = new WaczArchive(validWaczFile);
+
+        // the budget only fits the sampled archive and the pages, the small entries must not use it up first
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setSampleSize(1);
+        optionsBuilder.setSampling(SpotCheckOptions.Sampling.STRATIFIED);
+        optionsBuilder.setByteBudget(3541 + 425);
+        SpotCheckResult result = archive.spotCheck(optionsBuilder.build());
+
+        assertTrue(result.isValid());
+        assertTrue(result.budgetExhausted());
+        assertEquals(1, result.verifiedCount());
+        assertEquals(SpotCheckResult.Status.VERIFIED, result.statuses().get("archive/data.warc.gz"));
+        assertEquals(SpotCheckResult.Status.CRC_VERIFIED, result.statuses().get("pages/pages.jsonl"));
+        assertEquals(SpotCheckResult.Status.OK, result.statuses().get("indexes/index.cdx"));
+    }
+
+    @Test
+    public void testSpotCheckOptionsValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new SpotCheckOptions(-1,
+                SpotCheckOptions.Sampling.RANDOM, 0, 0, 0, Optional.empty(), 0.05));
+        assertThrows(NullPointerException.class, () -> new SpotCheckOptions(1, null, 0, 0, 0, Optional.empty(), 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new SpotCheckOptions(1,
+                SpotCheckOptions.Sampling.RANDOM, 0, -1, 0, Optional.empty(), 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new SpotCheckOptions(1,
+                SpotCheckOptions.Sampling.RANDOM, 0, 0, -1, Optional.empty(), 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new SpotCheckOptions(1,
+                SpotCheckOptions.Sampling.RANDOM, 0, 0, 0, Optional.empty(), 0.0));
+
+        SpotCheckOptions.Builder optionsBuilder = new SpotCheckOptions.Builder();
+        optionsBuilder.setFailureTolerance(1);
+        assertThrows(IllegalArgumentException.class, optionsBuilder::build);
+    }
 }
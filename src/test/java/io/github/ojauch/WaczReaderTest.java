@@ -0,0 +1,161 @@
+package io.github.ojauch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WaczReaderTest {
+    @Test
+    public void testReadStoredEntry() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        try (WaczReader reader = new WaczArchive(validWaczFile).openReader()) {
+            assertTrue(reader.hasEntry("pages/pages.jsonl"));
+            assertFalse(reader.hasEntry("does-not-exist"));
+            assertThrows(FileNotFoundException.class, () -> reader.getInputStream("does-not-exist"));
+
+            try (InputStream is = reader.getInputStream("pages/pages.jsonl")) {
+                String pages = new String(is.readAllBytes());
+                assertTrue(pages.startsWith("{\"format\""));
+            }
+        }
+    }
+
+    @Test
+    public void testReadDeflatedEntries() throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        File zipFile = createDeflatedZip(contents);
+
+        try (WaczReader reader = WaczReader.open(zipFile)) {
+            for (int i = 0; i < contents.size(); i++) {
+                try (InputStream is = reader.getInputStream("archive/" + i + ".warc")) {
+                    assertArrayEquals(contents.get(i), is.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        File zipFile = createDeflatedZip(contents);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (WaczReader reader = WaczReader.open(zipFile)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int entry = i % contents.size();
+                results.add(executor.submit(() -> {
+                    try (InputStream is = reader.getInputStream("archive/" + entry + ".warc")) {
+                        return Arrays.equals(contents.get(entry), is.readAllBytes());
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testClosedReader() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        WaczReader reader = WaczReader.open(validWaczFile);
+        reader.close();
+        assertThrows(IOException.class, () -> reader.getInputStream("pages/pages.jsonl"));
+    }
+
+    @Test
+    public void testExtractStoredEntry() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        Path target = Files.createTempFile("pages", ".jsonl");
+        try (WaczReader reader = WaczReader.open(validWaczFile)) {
+            reader.extract("pages/pages.jsonl", target);
+            try (InputStream is = reader.getInputStream("pages/pages.jsonl")) {
+                assertArrayEquals(is.readAllBytes(), Files.readAllBytes(target));
+            }
+
+            String digest = reader.extract("pages/pages.jsonl", target, "SHA-256");
+            try (InputStream is = reader.getInputStream("pages/pages.jsonl")) {
+                assertEquals(HashingHelper.calculateChecksum(is, "SHA-256"), digest);
+            }
+            assertThrows(FileNotFoundException.class, () -> reader.extract("does-not-exist", target));
+        }
+    }
+
+    @Test
+    public void testExtractAllDeflated() throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        File zipFile = createDeflatedZip(contents);
+        Path directory = Files.createTempDirectory("extract");
+
+        try (WaczReader reader = WaczReader.open(zipFile)) {
+            reader.extractAll(directory, 4);
+        }
+
+        for (int i = 0; i < contents.size(); i++) {
+            assertArrayEquals(contents.get(i), Files.readAllBytes(directory.resolve("archive/" + i + ".warc")));
+        }
+    }
+
+    @Test
+    public void testExtractAllOutsideDirectory() throws Exception {
+        File zipFile = File.createTempFile("traversal", ".zip");
+        zipFile.deleteOnExit();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            zos.putNextEntry(new ZipEntry("../outside.txt"));
+            zos.write("outside".getBytes());
+            zos.closeEntry();
+        }
+
+        Path directory = Files.createTempDirectory("extract");
+        try (WaczReader reader = WaczReader.open(zipFile)) {
+            assertThrows(ZipException.class, () -> reader.extractAll(directory));
+        }
+        assertFalse(Files.exists(directory.resolveSibling("outside.txt")));
+    }
+
+    private File createDeflatedZip(List<byte[]> contents) throws IOException {
+        File zipFile = File.createTempFile("deflated", ".zip");
+        zipFile.deleteOnExit();
+
+        Random random = new Random(42);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (int i = 0; i < 10; i++) {
+                // mix of compressible text and random bytes, larger than the read buffer
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                for (int j = 0; j < 5000 * (i + 1); j++) {
+                    content.write(("line " + j + "\n").getBytes());
+                }
+                byte[] randomBytes = new byte[100_000];
+                random.nextBytes(randomBytes);
+                content.write(randomBytes);
+
+                contents.add(content.toByteArray());
+                zos.putNextEntry(new ZipEntry("archive/" + i + ".warc"));
+                zos.write(content.toByteArray());
+                zos.closeEntry();
+            }
+        }
+        return zipFile;
+    }
+}
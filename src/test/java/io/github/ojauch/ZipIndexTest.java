@@ -0,0 +1,158 @@
+package io.github.ojauch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipIndexTest {
+    @Test
+    public void testReadValidArchive() throws Exception {
+        File validWaczFile = new File(getClass().getClassLoader()
+                .getResource("valid-example.wacz").getFile());
+        ZipIndex index = ZipIndex.read(validWaczFile);
+
+        assertFalse(index.getEntries(EntryCategory.ARCHIVE).isEmpty());
+        assertFalse(index.getEntries(EntryCategory.INDEX).isEmpty());
+        assertFalse(index.getEntries(EntryCategory.PAGES).isEmpty());
+        assertEquals(EntryCategory.METADATA, index.getEntry("datapackage.json").category());
+        assertNull(index.getEntry("does-not-exist"));
+
+        try (ZipFile zipFile = new ZipFile(validWaczFile);
+             FileChannel channel = FileChannel.open(validWaczFile.toPath(), StandardOpenOption.READ)) {
+            assertEquals(zipFile.size(), index.size());
+
+            for (ZipIndexEntry entry : index.entries()) {
+                ZipEntry zipEntry = zipFile.getEntry(entry.path());
+                assertNotNull(zipEntry);
+                assertEquals(zipEntry.getMethod(), entry.method());
+                assertEquals(zipEntry.getCrc(), entry.crc());
+                assertEquals(zipEntry.getSize(), entry.size());
+                assertEquals(zipEntry.getCompressedSize(), entry.compressedSize());
+
+                if (entry.isStored()) {
+                    ByteBuffer data = ByteBuffer.allocate((int) entry.size());
+                    channel.read(data, ZipIndex.readDataOffset(channel, entry));
+                    try (InputStream is = zipFile.getInputStream(zipEntry)) {
+                        assertArrayEquals(is.readAllBytes(), data.array());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testClassification() {
+        assertEquals(EntryCategory.ARCHIVE, EntryCategory.of("archive/data.warc.gz"));
+        assertEquals(EntryCategory.ARCHIVE, EntryCategory.of("archive/data.warc"));
+        assertEquals(EntryCategory.OTHER, EntryCategory.of("archive/.warc"));
+        assertEquals(EntryCategory.OTHER, EntryCategory.of("archive/data.txt"));
+        assertEquals(EntryCategory.INDEX, EntryCategory.of("indexes/index.cdx.gz"));
+        assertEquals(EntryCategory.INDEX, EntryCategory.of("indexes/index.cdx"));
+        assertEquals(EntryCategory.OTHER, EntryCategory.of("indexes/index.idx"));
+        assertEquals(EntryCategory.PAGES, EntryCategory.of("pages/pages.jsonl"));
+        assertEquals(EntryCategory.METADATA, EntryCategory.of("datapackage-digest.json"));
+        assertEquals(EntryCategory.OTHER, EntryCategory.of("fuzzy.json"));
+    }
+
+    @Test
+    public void testReadZip64Archive() throws Exception {
+        // more than 65535 entries forces the zip64 end of central directory record
+        File zip64File = File.createTempFile("zip64", ".zip");
+        zip64File.deleteOnExit();
+        int entryCount = 0x10000 + 10;
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip64File))) {
+            for (int i = 0; i < entryCount; i++) {
+                zos.putNextEntry(new ZipEntry("archive/" + i + ".warc"));
+                zos.write(Integer.toString(i).getBytes());
+                zos.closeEntry();
+            }
+        }
+
+        ZipIndex index = ZipIndex.read(zip64File);
+        assertEquals(entryCount, index.size());
+        assertEquals(entryCount, index.getEntries(EntryCategory.ARCHIVE).size());
+        assertEquals(5, index.getEntry("archive/65540.warc").size());
+    }
+
+    @Test
+    public void testReadZip64ExtraField() throws Exception {
+        // central directory sets size, compressed size and local header offset to the zip64 marker, the real
+        // values are only in the zip64 extra field
+        byte[] name = "archive/data.warc".getBytes(StandardCharsets.UTF_8);
+        byte[] data = "WARC/1.1".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int prefixLength = 7;
+
+        ByteBuffer zip = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        zip.put(new byte[prefixLength]);
+
+        // local file header with a zip64 extra field for the sizes only
+        zip.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt((int) crc.getValue())
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF)
+                .putShort((short) name.length).putShort((short) 20);
+        zip.put(name);
+        zip.putShort((short) 0x0001).putShort((short) 16).putLong(data.length).putLong(data.length);
+        int dataOffset = zip.position();
+        zip.put(data);
+
+        // central directory header with an unrelated extra field in front of the zip64 extra field
+        int cdOffset = zip.position();
+        zip.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt((int) crc.getValue())
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF)
+                .putShort((short) name.length).putShort((short) (8 + 28)).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt(0xFFFFFFFF);
+        zip.put(name);
+        zip.putShort((short) 0x5455).putShort((short) 4).putInt(0);
+        zip.putShort((short) 0x0001).putShort((short) 24).putLong(data.length).putLong(data.length)
+                .putLong(prefixLength);
+        int cdSize = zip.position() - cdOffset;
+
+        zip.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1)
+                .putInt(cdSize).putInt(cdOffset).putShort((short) 0);
+
+        File zip64File = File.createTempFile("zip64-extra", ".zip");
+        zip64File.deleteOnExit();
+        Files.write(zip64File.toPath(), Arrays.copyOf(zip.array(), zip.position()));
+
+        ZipIndex index = ZipIndex.read(zip64File);
+        ZipIndexEntry entry = index.getEntry("archive/data.warc");
+        assertNotNull(entry);
+        assertEquals(data.length, entry.size());
+        assertEquals(data.length, entry.compressedSize());
+        assertEquals(prefixLength, entry.localHeaderOffset());
+        assertEquals(crc.getValue(), entry.crc());
+        assertEquals(EntryCategory.ARCHIVE, entry.category());
+
+        try (FileChannel channel = FileChannel.open(zip64File.toPath(), StandardOpenOption.READ)) {
+            assertEquals(dataOffset, ZipIndex.readDataOffset(channel, entry));
+        }
+    }
+
+    @Test
+    public void testReadInvalidArchive() throws IOException {
+        File invalidFile = File.createTempFile("invalid", ".zip");
+        invalidFile.deleteOnExit();
+        Files.writeString(invalidFile.toPath(), "this is not a zip archive");
+        assertThrows(ZipException.class, () -> ZipIndex.read(invalidFile));
+    }
+}